@@ -10,6 +10,7 @@ import android.view.ViewGroup;
 import android.view.animation.Animation;
 import android.view.animation.Interpolator;
 import android.view.animation.LinearInterpolator;
+import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -34,6 +35,14 @@ public class RefreshHeader extends LinearLayout implements SwipeRefresh.PullList
   }
 
   public RefreshHeader(Context context) {
+    this(context, R.layout.refresh_header, R.id.rotate, R.id.text);
+  }
+
+  /**
+   * Build a header from a custom layout. The layout may be a {@code <merge>}; rotateId and textId
+   * name its ImageView and TextView.
+   */
+  public RefreshHeader(Context context, int layoutResId, int rotateId, int textId) {
     super(context);
     ViewGroup.LayoutParams params = new ViewGroup.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
         ViewGroup.LayoutParams.MATCH_PARENT);
@@ -42,39 +51,67 @@ public class RefreshHeader extends LinearLayout implements SwipeRefresh.PullList
     setOrientation(HORIZONTAL);
     LayoutInflater inflater =
         (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-    mContentView = inflater.inflate(R.layout.refresh_header, null);
-    mRotateView = (ImageView) mContentView.findViewById(R.id.rotate);
-    mTextView = (TextView) mContentView.findViewById(R.id.text);
+    // Inflate into a container so <merge> layouts work and the content keeps its own height.
+    FrameLayout container = new FrameLayout(context);
+    inflater.inflate(layoutResId, container, true);
+    mContentView = container;
+    mRotateView = (ImageView) mContentView.findViewById(rotateId);
+    mTextView = (TextView) mContentView.findViewById(textId);
     addView(mContentView);
   }
 
   @Override protected void onLayout(boolean changed, int l, int t, int r, int b) {
     super.onLayout(changed, l, t, r, b);
-    if (mContentView.getMeasuredHeight() > b) {
-      setGravity(Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL);
-    } else {
-      setGravity(Gravity.CENTER);
+    if (mContentView == null) {
+      return;
+    }
+    // Content is laid out against the bottom; once the exposed area is taller than it, shift
+    // it up to the center directly instead of switching gravity, which would request another
+    // layout on every drag frame that crosses the threshold.
+    final int extra = (b - t) - mContentView.getMeasuredHeight();
+    if (extra > 0) {
+      mContentView.offsetTopAndBottom(-extra / 2);
     }
   }
 
+  /**
+   * @return The measured height of the header content, or 0 if it has not been measured yet.
+   */
+  public int getContentHeight() {
+    return mContentView == null ? 0 : mContentView.getMeasuredHeight();
+  }
+
   @Override public void onReset() {
-    mTextView.setText(R.string.csr_text_state_normal);
   }
 
   @Override public void onPull(float overScroll, float totalDragDistance, float rotation) {
-    if (overScroll > totalDragDistance) {
-      mTextView.setText(R.string.csr_text_state_ready);
-    } else {
-      mTextView.setText(R.string.csr_text_state_normal);
-    }
   }
 
   @Override public void onRefreshing() {
-    mTextView.setText(R.string.csr_text_state_refresh);
   }
 
   @Override public void onComplete(boolean isSuccess) {
-    mTextView.setText(isSuccess ? R.string.csr_text_state_complete : R.string.csr_text_state_error);
+  }
+
+  @Override
+  public int getTextId(int state, float overScroll, float totalDragDistance, boolean isSuccess) {
+    switch (state) {
+      case STATE_PULL:
+        return overScroll > totalDragDistance ? R.string.csr_text_state_ready
+            : R.string.csr_text_state_normal;
+      case STATE_REFRESHING:
+        return R.string.csr_text_state_refresh;
+      case STATE_COMPLETE:
+        return isSuccess ? R.string.csr_text_state_complete : R.string.csr_text_state_error;
+      default:
+        return R.string.csr_text_state_normal;
+    }
+  }
+
+  @Override public void onTextChanged(int textId) {
+    if (mTextView != null) {
+      mTextView.setText(textId);
+    }
   }
 
   public void setAnimationListener(Animation.AnimationListener listener) {
@@ -17,6 +17,7 @@
 package com.sohu.xzd.widget;
 
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
 import android.support.v4.view.MotionEventCompat;
 import android.support.v4.view.ViewCompat;
@@ -65,6 +66,8 @@ public class SwipeRefresh extends ViewGroup {
   private static final int ANIMATE_TO_START_DURATION = 200;
   // Default offset in dips from the top of the view to where the progress spinner should stop
   private static final int DEFAULT_CIRCLE_TARGET = 50;
+  // Max angle in degrees from the vertical axis that a move may have to still be taken as a pull
+  private static final float DEFAULT_MAX_PULL_ANGLE = 30f;
   private static final int[] LAYOUT_ATTRS = new int[] {
       android.R.attr.enabled
   };
@@ -75,12 +78,17 @@ public class SwipeRefresh extends ViewGroup {
   private View mTarget; // the target of the gesture
   private OnRefreshListener mListener;
   private int mTouchSlop;
+  private float mPullSlop;
+  private float mMaxPullAngleTan;
   private float mTotalDragDistance = -1;
   private int mCurrentTargetOffsetTop;
   // Whether or not the starting offset has been determined.
   private boolean mOriginalOffsetCalculated = false;
+  private float mInitialMotionX;
   private float mInitialMotionY;
   private boolean mIsBeingDragged;
+  // Whether the current gesture has been committed to a horizontal swipe; cleared on ACTION_DOWN.
+  private boolean mIsHorizontalLocked;
   private int mActivePointerId = INVALID_POINTER;
   private boolean mReturningToStart;
   private RefreshHeader mRefreshHeader;
@@ -93,6 +101,8 @@ public class SwipeRefresh extends ViewGroup {
   private Animation mScaleDownAnimation;
 
   private float mSpinnerFinalOffset;
+  // Whether the offsets have been taken from the measured header for the current configuration.
+  private boolean mHeaderOffsetCalculated = false;
   private final Animation mAnimateToCorrectPosition = new Animation() {
     @Override public void applyTransformation(float interpolatedTime, Transformation t) {
       int targetTop = 0;
@@ -103,6 +113,20 @@ public class SwipeRefresh extends ViewGroup {
     }
   };
   private boolean mNotify;
+  // Last header snapshot dispatched to mRefreshHeader.
+  private HeaderState mAppliedHeaderState;
+  // Latest drag progress, turned into a snapshot at most once per animation frame.
+  private float mPullOverScroll;
+  private float mPullTotalDragDistance;
+  private float mPullRotation;
+  private boolean mPullFramePending;
+  private final Runnable mApplyPullFrame = new Runnable() {
+    @Override public void run() {
+      mPullFramePending = false;
+      applyHeaderState(PullListener.STATE_PULL, mPullOverScroll, mPullTotalDragDistance,
+          mPullRotation, false);
+    }
+  };
   private volatile boolean mRefreshing = false;
   private volatile boolean mIsSuccess = false;
   private AnimationListener mRefreshListener = new AnimationListener() {
@@ -114,14 +138,14 @@ public class SwipeRefresh extends ViewGroup {
 
     @Override public void onAnimationEnd(Animation animation) {
       if (mRefreshing) {
-        mRefreshHeader.onRefreshing();
+        updateHeaderState(PullListener.STATE_REFRESHING, false);
         if (mNotify) {
           if (mListener != null) {
             mListener.onRefresh();
           }
         }
       } else {
-        mRefreshHeader.onReset();
+        updateHeaderState(PullListener.STATE_RESET, false);
         mIsSuccess = false;
         setTargetOffsetTopAndBottom(mOriginalTargetOffsetTop - mCurrentTargetOffsetTop, true /* requires update */);
       }
@@ -140,6 +164,8 @@ public class SwipeRefresh extends ViewGroup {
     super(context, attrs);
 
     mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    mPullSlop = mTouchSlop;
+    mMaxPullAngleTan = (float) Math.tan(Math.toRadians(DEFAULT_MAX_PULL_ANGLE));
 
     setWillNotDraw(false);
     mDecelerateInterpolator = new DecelerateInterpolator(DECELERATE_INTERPOLATION_FACTOR);
@@ -153,7 +179,8 @@ public class SwipeRefresh extends ViewGroup {
     createProgressView();
 
     ViewCompat.setChildrenDrawingOrderEnabled(this, true);
-    // the absolute offset has to take into account that the circle starts at an offset
+    // the absolute offset has to take into account that the circle starts at an offset,
+    // replaced by the measured header height once it is known
     mSpinnerFinalOffset = DEFAULT_CIRCLE_TARGET * metrics.density;
     mTotalDragDistance = mSpinnerFinalOffset;
   }
@@ -179,6 +206,25 @@ public class SwipeRefresh extends ViewGroup {
     addView(mRefreshHeader);
   }
 
+  /**
+   * Replace the header shown above the target, e.g. one built with
+   * {@link RefreshHeader#RefreshHeader(Context, int, int, int)} from a taller layout. The trigger
+   * distance and resting offset are taken from the new header on the next measure. Call this
+   * while the widget is idle, header animations are not carried over.
+   */
+  public void setRefreshHeader(RefreshHeader header) {
+    if (header == null) {
+      throw new IllegalArgumentException("header == null");
+    }
+    header.setVisibility(mRefreshHeader.getVisibility());
+    removeView(mRefreshHeader);
+    mRefreshHeader = header;
+    addView(mRefreshHeader);
+    mHeaderOffsetCalculated = false;
+    reapplyHeaderState();
+    requestLayout();
+  }
+
   /**
    * Set the listener to be notified when a refresh is triggered via the swipe
    * gesture.
@@ -187,6 +233,29 @@ public class SwipeRefresh extends ViewGroup {
     mListener = listener;
   }
 
+  /**
+   * Scale the system touch slop used to decide whether a move is a pull or a
+   * horizontal swipe. Values above 1 make the widget less eager to intercept,
+   * which helps when it is hosted in a horizontal pager.
+   */
+  public void setTouchSlopMultiplier(float multiplier) {
+    if (!(multiplier > 0)) {
+      throw new IllegalArgumentException("multiplier must be > 0");
+    }
+    mPullSlop = mTouchSlop * multiplier;
+  }
+
+  /**
+   * Set the max angle in degrees, measured from the vertical axis, that a
+   * move may deviate by and still be taken as a pull. Must be in (0, 90).
+   */
+  public void setMaxPullAngle(float degrees) {
+    if (!(degrees > 0 && degrees < 90)) {
+      throw new IllegalArgumentException("degrees must be in (0, 90)");
+    }
+    mMaxPullAngleTan = (float) Math.tan(Math.toRadians(degrees));
+  }
+
   /**
    * Pre API 11, alpha is used to make the progress circle appear instead of scale.
    */
@@ -219,10 +288,10 @@ public class SwipeRefresh extends ViewGroup {
     ensureTarget();
     mRefreshing = refreshing;
     if (mRefreshing) {
-      mRefreshHeader.onRefreshing();
+      updateHeaderState(PullListener.STATE_REFRESHING, false);
       animateOffsetToCorrectPosition(mCurrentTargetOffsetTop, mRefreshListener);
     } else {
-      mRefreshHeader.onComplete(mIsSuccess);
+      updateHeaderState(PullListener.STATE_COMPLETE, mIsSuccess);
       mRefreshHeader.postDelayed(new Runnable() {
         @Override public void run() {
           animateOffsetToStartPosition(mCurrentTargetOffsetTop, mRefreshListener);
@@ -332,11 +401,30 @@ public class SwipeRefresh extends ViewGroup {
     mRefreshHeader.measure(MeasureSpec.makeMeasureSpec(MEASURED_SIZE_MASK, MeasureSpec.AT_MOST),
         MeasureSpec.makeMeasureSpec(MEASURED_SIZE_MASK, MeasureSpec.AT_MOST));
 
+    boolean offsetChanged = false;
+    if (!mHeaderOffsetCalculated) {
+      final int headerHeight = mRefreshHeader.getContentHeight();
+      if (headerHeight > 0) {
+        mHeaderOffsetCalculated = true;
+        offsetChanged = headerHeight != (int) mSpinnerFinalOffset;
+        mSpinnerFinalOffset = headerHeight;
+        mTotalDragDistance = mSpinnerFinalOffset;
+      }
+    }
+
     if (!mOriginalOffsetCalculated) {
       mOriginalOffsetCalculated = true;
+      offsetChanged = true;
       mOriginHeaderOffset = 0;
       mOriginalTargetOffsetTop = mCurrentTargetOffsetTop = 0;
     }
+
+    if (offsetChanged && mRefreshing && !isAnimationRunning(mAnimateToCorrectPosition)) {
+      // Already resting at the old offset (refreshing before the first measure, or the header
+      // was re-measured mid refresh), move to the new one so the header isn't clipped.
+      mTarget.offsetTopAndBottom((int) mSpinnerFinalOffset - mTarget.getTop());
+      mCurrentTargetOffsetTop = mTarget.getTop();
+    }
     mHeaderViewIndex = -1;
     // Get the index of the headerView.
     for (int index = 0; index < getChildCount(); index++) {
@@ -347,6 +435,14 @@ public class SwipeRefresh extends ViewGroup {
     }
   }
 
+  @Override protected void onConfigurationChanged(Configuration newConfig) {
+    super.onConfigurationChanged(newConfig);
+    // The header may be re-measured to a different height, pick up the new offsets next measure.
+    mHeaderOffsetCalculated = false;
+    // Resources may have changed, push the current header state again so its text is reloaded.
+    reapplyHeaderState();
+  }
+
   /**
    * @return Whether it is possible for the child view of this layout to
    * scroll up. Override this if the child view is a custom view.
@@ -375,7 +471,12 @@ public class SwipeRefresh extends ViewGroup {
       mReturningToStart = false;
     }
 
-    if (!isEnabled() || mReturningToStart || canChildScrollUp() || mRefreshing) {
+    if (action == MotionEvent.ACTION_DOWN) {
+      mIsHorizontalLocked = false;
+    }
+
+    if (!isEnabled() || mReturningToStart || mIsHorizontalLocked || canChildScrollUp()
+        || mRefreshing) {
       // Fail fast if we're not in a state where a swipe is possible
       return false;
     }
@@ -389,6 +490,7 @@ public class SwipeRefresh extends ViewGroup {
         if (initialMotionY == -1) {
           return false;
         }
+        mInitialMotionX = getMotionEventX(ev, mActivePointerId);
         mInitialMotionY = initialMotionY;
 
       case MotionEvent.ACTION_MOVE:
@@ -401,11 +503,18 @@ public class SwipeRefresh extends ViewGroup {
         if (y == -1) {
           return false;
         }
+        if (mIsBeingDragged) {
+          break;
+        }
+        final float xDiff = Math.abs(getMotionEventX(ev, mActivePointerId) - mInitialMotionX);
         final float yDiff = y - mInitialMotionY;
-        if (yDiff > mTouchSlop && !mIsBeingDragged) {
+        if (yDiff > mPullSlop && xDiff <= yDiff * mMaxPullAngleTan) {
           mIsBeingDragged = true;
           mIsSuccess = false;
-          mRefreshHeader.onReset();
+          updateHeaderState(PullListener.STATE_RESET, false);
+        } else if (xDiff > mPullSlop && xDiff > Math.abs(yDiff)) {
+          // Horizontal swipe, leave it to the pager until the next ACTION_DOWN.
+          mIsHorizontalLocked = true;
         }
         break;
 
@@ -422,6 +531,14 @@ public class SwipeRefresh extends ViewGroup {
     return mIsBeingDragged;
   }
 
+  private float getMotionEventX(MotionEvent ev, int activePointerId) {
+    final int index = MotionEventCompat.findPointerIndex(ev, activePointerId);
+    if (index < 0) {
+      return -1;
+    }
+    return MotionEventCompat.getX(ev, index);
+  }
+
   private float getMotionEventY(MotionEvent ev, int activePointerId) {
     final int index = MotionEventCompat.findPointerIndex(ev, activePointerId);
     if (index < 0) {
@@ -492,7 +609,7 @@ public class SwipeRefresh extends ViewGroup {
 
           }
           float rotation = (-0.25f + .4f * adjustedPercent + tensionPercent * 2) * .5f;
-          mRefreshHeader.onPull(overscrollTop, mTotalDragDistance, rotation);
+          updatePullState(overscrollTop, mTotalDragDistance, rotation);
           setTargetOffsetTopAndBottom(targetY - mCurrentTargetOffsetTop,
               true /* requires update */);
         }
@@ -587,6 +704,90 @@ public class SwipeRefresh extends ViewGroup {
     }
   }
 
+  /**
+   * Apply a reset, refreshing or complete state right away, dropping any pull frame still pending.
+   */
+  private void updateHeaderState(int state, boolean isSuccess) {
+    cancelPullFrame();
+    applyHeaderState(state, 0, 0, 0, isSuccess);
+  }
+
+  /**
+   * Record the latest drag progress and apply it on the next animation frame, so several moves
+   * within a frame dispatch at most once.
+   */
+  private void updatePullState(float overScroll, float totalDragDistance, float rotation) {
+    mPullOverScroll = overScroll;
+    mPullTotalDragDistance = totalDragDistance;
+    mPullRotation = rotation;
+    if (!mPullFramePending) {
+      mPullFramePending = true;
+      ViewCompat.postOnAnimation(this, mApplyPullFrame);
+    }
+  }
+
+  private void cancelPullFrame() {
+    if (mPullFramePending) {
+      removeCallbacks(mApplyPullFrame);
+      mPullFramePending = false;
+    }
+  }
+
+  /**
+   * Diff a new header snapshot against the one last applied and dispatch only the fields that
+   * changed: the state callback, onPull for progress, and onTextChanged for the text id.
+   */
+  private void applyHeaderState(int state, float overScroll, float totalDragDistance,
+      float rotation, boolean isSuccess) {
+    final int textId = mRefreshHeader.getTextId(state, overScroll, totalDragDistance, isSuccess);
+    final HeaderState prev = mAppliedHeaderState;
+    if (prev != null && prev.matches(state, overScroll, totalDragDistance, rotation, isSuccess,
+        textId)) {
+      return;
+    }
+    final HeaderState next =
+        new HeaderState(state, overScroll, totalDragDistance, rotation, isSuccess, textId);
+    mAppliedHeaderState = next;
+    if (prev == null || prev.state != next.state || prev.isSuccess != next.isSuccess) {
+      switch (next.state) {
+        case PullListener.STATE_RESET:
+          mRefreshHeader.onReset();
+          break;
+        case PullListener.STATE_REFRESHING:
+          mRefreshHeader.onRefreshing();
+          break;
+        case PullListener.STATE_COMPLETE:
+          mRefreshHeader.onComplete(next.isSuccess);
+          break;
+      }
+    }
+    if (next.state == PullListener.STATE_PULL
+        && (prev == null || prev.state != PullListener.STATE_PULL || !prev.hasSameProgress(next))) {
+      mRefreshHeader.onPull(next.overScroll, next.totalDragDistance, next.rotation);
+    }
+    if (prev == null || prev.textId != next.textId) {
+      mRefreshHeader.onTextChanged(next.textId);
+    }
+  }
+
+  /**
+   * Dispatch every field of the current snapshot again, e.g. to a new header or after resources
+   * changed.
+   */
+  private void reapplyHeaderState() {
+    final HeaderState state = mAppliedHeaderState;
+    if (state != null) {
+      mAppliedHeaderState = null;
+      applyHeaderState(state.state, state.overScroll, state.totalDragDistance, state.rotation,
+          state.isSuccess);
+    }
+  }
+
+  @Override protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    cancelPullFrame();
+  }
+
   private void onSecondaryPointerUp(MotionEvent ev) {
     final int pointerIndex = MotionEventCompat.getActionIndex(ev);
     final int pointerId = MotionEventCompat.getPointerId(ev, pointerIndex);
@@ -595,10 +796,65 @@ public class SwipeRefresh extends ViewGroup {
       // active pointer and adjust accordingly.
       final int newPointerIndex = pointerIndex == 0 ? 1 : 0;
       mActivePointerId = MotionEventCompat.getPointerId(ev, newPointerIndex);
+      if (!mIsBeingDragged) {
+        // Measure the undecided gesture from where the new pointer is, otherwise the jump between
+        // fingers can be taken as a horizontal swipe.
+        mInitialMotionX = MotionEventCompat.getX(ev, newPointerIndex);
+        mInitialMotionY = MotionEventCompat.getY(ev, newPointerIndex);
+      }
     }
   }
 
+  /**
+   * Immutable snapshot of what the {@link PullListener} should display.
+   */
+  static final class HeaderState {
+    final int state;
+    final float overScroll;
+    final float totalDragDistance;
+    final float rotation;
+    final boolean isSuccess;
+    final int textId;
+
+    HeaderState(int state, float overScroll, float totalDragDistance, float rotation,
+        boolean isSuccess, int textId) {
+      this.state = state;
+      this.overScroll = overScroll;
+      this.totalDragDistance = totalDragDistance;
+      this.rotation = rotation;
+      this.isSuccess = isSuccess;
+      this.textId = textId;
+    }
+
+    boolean matches(int state, float overScroll, float totalDragDistance, float rotation,
+        boolean isSuccess, int textId) {
+      return this.state == state
+          && this.overScroll == overScroll
+          && this.totalDragDistance == totalDragDistance
+          && this.rotation == rotation
+          && this.isSuccess == isSuccess
+          && this.textId == textId;
+    }
+
+    boolean hasSameProgress(HeaderState other) {
+      return overScroll == other.overScroll
+          && totalDragDistance == other.totalDragDistance
+          && rotation == other.rotation;
+    }
+  }
+
+  /**
+   * Receives header updates. The widget diffs each update against the last one delivered, so
+   * {@link #onReset}, {@link #onRefreshing} and {@link #onComplete} are only made when the state
+   * changes, {@link #onPull} once per frame while the drag progress changes, and
+   * {@link #onTextChanged} only when {@link #getTextId} returns a different id.
+   */
   public interface PullListener {
+    public static final int STATE_RESET = 0;
+    public static final int STATE_PULL = 1;
+    public static final int STATE_REFRESHING = 2;
+    public static final int STATE_COMPLETE = 3;
+
     public void onReset();
 
     public void onPull(float overScroll, float totalDragDistance, float rotation);
@@ -606,6 +862,13 @@ public class SwipeRefresh extends ViewGroup {
     public void onRefreshing();
 
     public void onComplete(boolean isSuccess);
+
+    /**
+     * @return The string resource to show for the given state and progress.
+     */
+    public int getTextId(int state, float overScroll, float totalDragDistance, boolean isSuccess);
+
+    public void onTextChanged(int textId);
   }
 
   /**